@@ -0,0 +1,457 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.yaml.snakeyaml.Yaml;
+
+import com.onthegomap.planetiler.FeatureCollector;
+import com.onthegomap.planetiler.Profile;
+import com.onthegomap.planetiler.VectorTile;
+import com.onthegomap.planetiler.config.Arguments;
+import com.onthegomap.planetiler.config.PlanetilerConfig;
+import com.onthegomap.planetiler.geo.GeoUtils;
+import com.onthegomap.planetiler.geo.GeometryException;
+import com.onthegomap.planetiler.reader.SimpleFeature;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import com.onthegomap.planetiler.reader.osm.OsmElement;
+import com.onthegomap.planetiler.stats.Stats;
+
+import overturelayers.Building;
+import overturelayers.HandlerMetrics;
+import overturelayers.Transportation;
+import overturelayers.Water;
+
+/**
+ * Micro-benchmarks for the per-feature processFeature hot path of every example
+ * profile in this repo, and for merging dense low-zoom tiles in postProcess.
+ *
+ * Each processFeature case builds a synthetic source feature (OSM nodes/ways or
+ * Overture parquet rows with nested names, road_flags, speed_limits, etc.),
+ * runs it through the profile's processFeature into a fresh FeatureCollector,
+ * and reports nanoseconds and bytes allocated per call after a warmup phase.
+ * The postprocess cases merge thousands of short road or river pieces the way
+ * a low-zoom tile does. This follows the JMH warmup/measurement model without
+ * needing a build tool.
+ *
+ * Every example in overturelayers/tests.yml also runs as a case named
+ * "tests.yml/<example name>", with its input fed through the full Overture
+ * profile. Cases can have a budget for time and bytes allocated per call in
+ * benchmarks.yml. Add --check_budgets=true to exit with an error if any case
+ * goes over its budget or a budget names a case that doesn't exist. Bytes
+ * allocated are checked by running every case at once on separate threads,
+ * then the cases with a time budget run again one at a time so their ns/op
+ * isn't inflated by contention for CPU and memory bandwidth. The budgets are loose upper bounds meant to catch big regressions on any
+ * machine, not precise targets. Output correctness is still checked by running
+ * the tests.yml file with Overture.java --tests.
+ *
+ * To run:
+ * - java -cp planetiler.jar Benchmarks.java
+ * - java -cp planetiler.jar Benchmarks.java --cases=transportation,building
+ * --warmup=3 --iterations=5 --iteration_ms=1000
+ * - java -cp planetiler.jar Benchmarks.java --check_budgets=true
+ */
+public class Benchmarks {
+
+  /** Upper bounds for the time and bytes allocated per operation. */
+  record Budget(double maxNanosPerOp, double maxBytesPerOp) {
+    static final Budget NONE = new Budget(Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+  }
+
+  /** One benchmarked operation, returning a value derived from its output so it can't be optimized away. */
+  interface Op {
+    long run() throws GeometryException;
+  }
+
+  /** An operation to benchmark, checking the clock every {@code batch} runs. */
+  record Case(String name, int batch, Op op) {}
+
+  public static void main(String[] args) throws Exception {
+    var arguments = Arguments.fromArgs(args);
+    var config = PlanetilerConfig.from(arguments);
+    List<String> only = arguments.getList("cases", "only run cases with these names", List.of());
+    int warmup = arguments.getInteger("warmup", "warmup iterations per case", 3);
+    int iterations = arguments.getInteger("iterations", "measured iterations per case", 5);
+    int iterationMs = arguments.getInteger("iteration_ms", "duration of each iteration in milliseconds", 1_000);
+    boolean checkBudgets = arguments.getBoolean("check_budgets",
+        "fail if any case goes over its budget", false);
+    Path tests = arguments.file("tests", "yaml test cases to benchmark",
+        Path.of("overturelayers", "tests.yml"));
+    Path budgetsPath = arguments.file("budgets", "yaml file with budgets by case name",
+        Path.of("benchmarks.yml"));
+
+    var collectors = new FeatureCollector.Factory(config, Stats.inMemory());
+    List<Case> allCases = new ArrayList<>(cases(config, collectors));
+    allCases.addAll(testCases(tests, new Overture(config, new HandlerMetrics(false, Stats.inMemory())), collectors));
+    var cases = allCases.stream()
+        .filter(benchmark -> only.isEmpty() || only.contains(benchmark.name()))
+        .toList();
+    var budgets = budgets(budgetsPath);
+    List<String> failures = new ArrayList<>();
+    var names = allCases.stream().map(Case::name).toList();
+    for (var name : budgets.keySet()) {
+      if (!names.contains(name)) {
+        String message = budgetsPath + " has a budget for unknown case " + name;
+        if (checkBudgets) {
+          failures.add(message);
+        } else {
+          System.err.println("WARNING: " + message);
+        }
+      }
+    }
+    System.out.printf("%-64s %14s %14s%n", "case", "ns/op", "bytes/op");
+    long sink = 0;
+    if (checkBudgets) {
+      // each case runs on its own thread so allocation counts stay separate
+      List<Result> results = new ArrayList<>();
+      try (var executor = Executors.newFixedThreadPool(config.threads())) {
+        List<Future<Result>> futures = new ArrayList<>();
+        for (var benchmark : cases) {
+          futures.add(executor.submit(() -> run(benchmark, warmup, iterations, iterationMs)));
+        }
+        for (var future : futures) {
+          results.add(future.get());
+        }
+      }
+      for (int i = 0; i < cases.size(); i++) {
+        var benchmark = cases.get(i);
+        var result = results.get(i);
+        var budget = budgets.getOrDefault(benchmark.name(), Budget.NONE);
+        double nanosPerOp = result.nanosPerOp;
+        if (Double.isFinite(budget.maxNanosPerOp())) {
+          // time the case again alone so other cases don't slow it down
+          var serial = run(benchmark, warmup, iterations, iterationMs);
+          sink += serial.sink;
+          nanosPerOp = serial.nanosPerOp;
+        }
+        result = new Result(nanosPerOp, result.bytesPerOp, result.sink);
+        sink += result.sink;
+        print(benchmark, result);
+        if (result.nanosPerOp > budget.maxNanosPerOp() || result.bytesPerOp > budget.maxBytesPerOp()) {
+          failures.add(String.format("%s: %.1f ns/op %.1f bytes/op exceeds budget of %.0f ns/op %.0f bytes/op",
+              benchmark.name(), result.nanosPerOp, result.bytesPerOp, budget.maxNanosPerOp(),
+              budget.maxBytesPerOp()));
+        }
+      }
+    } else {
+      for (var benchmark : cases) {
+        var result = run(benchmark, warmup, iterations, iterationMs);
+        sink += result.sink;
+        print(benchmark, result);
+      }
+    }
+    // print the sink so the JIT can't eliminate the work being measured
+    System.out.println("(sink=" + sink + ")");
+    if (!failures.isEmpty()) {
+      failures.forEach(System.err::println);
+      System.exit(1);
+    }
+  }
+
+  static void print(Case benchmark, Result result) {
+    System.out.printf("%-64s %14.1f %14.1f%n", benchmark.name(), result.nanosPerOp, result.bytesPerOp);
+  }
+
+  /** Runs the warmup iterations then returns the average of the measured iterations. */
+  static Result run(Case benchmark, int warmup, int iterations, int iterationMs) throws GeometryException {
+    long sink = 0;
+    for (int i = 0; i < warmup; i++) {
+      sink += measure(benchmark, iterationMs).sink;
+    }
+    double nanos = 0, bytes = 0;
+    for (int i = 0; i < iterations; i++) {
+      var result = measure(benchmark, iterationMs);
+      nanos += result.nanosPerOp;
+      bytes += result.bytesPerOp;
+      sink += result.sink;
+    }
+    return new Result(nanos / iterations, bytes / iterations, sink);
+  }
+
+  record Result(double nanosPerOp, double bytesPerOp, long sink) {}
+
+  static Result measure(Case benchmark, int iterationMs) throws GeometryException {
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long sink = 0;
+    long ops = 0;
+    long deadline = System.nanoTime() + iterationMs * 1_000_000L;
+    long startBytes = threads.getCurrentThreadAllocatedBytes();
+    long start = System.nanoTime();
+    long now;
+    do {
+      // check the clock in batches to keep timing overhead out of fast ops
+      for (int i = 0; i < benchmark.batch(); i++) {
+        sink += benchmark.op().run();
+      }
+      ops += benchmark.batch();
+      now = System.nanoTime();
+    } while (now < deadline);
+    long bytes = threads.getCurrentThreadAllocatedBytes() - startBytes;
+    return new Result((now - start) / (double) ops, bytes / (double) ops, sink);
+  }
+
+  /** Returns a case that runs {@code input} through {@code profile}'s processFeature. */
+  static Case process(FeatureCollector.Factory collectors, String name, Profile profile,
+      Supplier<SourceFeature> input) {
+    // check the clock every 256 ops to keep timing overhead out of the result
+    return new Case(name, 256, () -> {
+      var source = input.get();
+      var features = collectors.get(source);
+      profile.processFeature(source, features);
+      long sink = 0;
+      for (var feature : features) {
+        sink += feature.getMinZoom();
+      }
+      return sink;
+    });
+  }
+
+  static List<Case> cases(PlanetilerConfig config, FeatureCollector.Factory collectors) {
+    List<Case> cases = new ArrayList<>();
+
+    var powerLine = line(-71.4, 41.8, 20);
+    var powerTags = Map.<String, Object>of("power", "line", "voltage", "115000", "operator", "National Grid");
+    cases.add(process(collectors, "power", new Power(),
+        () -> SimpleFeature.createFakeOsmFeature(powerLine, powerTags, "osm", null, 1, List.of())));
+
+    var road = line(-71.4, 41.8, 8);
+    var roadTags = Map.<String, Object>of("highway", "residential", "name", "Main Street");
+    cases.add(process(collectors, "power_miss", new Power(),
+        () -> SimpleFeature.createFakeOsmFeature(road, roadTags, "osm", null, 2, List.of())));
+
+    var node = GeoUtils.point(-71.4, 41.8);
+    var toiletTags = Map.<String, Object>of("amenity", "toilets", "access", "yes", "fee", "no");
+    cases.add(process(collectors, "toilets", new Toilets(),
+        () -> SimpleFeature.createFakeOsmFeature(node, toiletTags, "osm", null, 3, List.of())));
+
+    var info = new OsmElement.Info(123_456_789L, 1_700_000_000L, 4_321, 7, "mapper");
+    cases.add(process(collectors, "osm_qa_node", new OsmQaTiles(true),
+        () -> SimpleFeature.createFakeOsmFeature(node, toiletTags, "osm", null, 4, List.of(), info)));
+    cases.add(process(collectors, "osm_qa_way", new OsmQaTiles(true),
+        () -> SimpleFeature.createFakeOsmFeature(road, roadTags, "osm", null, 5, List.of(), info)));
+
+    var building = square(-71.4, 41.8, 0.0002);
+    var buildingTags = overture("buildings", "building", Map.of(
+        "subtype", "residential",
+        "class", "house",
+        "height", 9.5,
+        "num_floors", 2,
+        "roof_shape", "gabled",
+        "has_parts", false,
+        "names", names("Smith House", 2)));
+    cases.add(process(collectors, "overture_buildings", new OvertureBuildings(),
+        () -> SimpleFeature.create(building, buildingTags, "overture", null, 6)));
+
+    var landcover = square(-71.4, 41.8, 0.05);
+    var landcoverTags = overture("base", "land_cover", Map.of(
+        "subtype", "forest",
+        "cartography", Map.of("min_zoom", 8, "max_zoom", 15)));
+    cases.add(process(collectors, "overture_landcover", new OvertureLandcover(config),
+        () -> SimpleFeature.create(landcover, landcoverTags, "overture", null, 7)));
+
+    var water = new Water(config);
+    var lake = square(-71.4, 41.8, 0.01);
+    var lakeTags = overture("base", "water", Map.of(
+        "subtype", "lake",
+        "class", "lake",
+        "is_salt", false,
+        "is_intermittent", false,
+        "names", names("Lake Tiogue", 3)));
+    cases.add(process(collectors, "water_polygon", profile(water::processFeature),
+        () -> SimpleFeature.create(lake, lakeTags, "overture", null, 8)));
+    var river = line(-71.4, 41.8, 40);
+    var riverTags = overture("base", "water", Map.of(
+        "subtype", "river",
+        "class", "river",
+        "names", names("Pawtuxet River", 5)));
+    cases.add(process(collectors, "water_line", profile(water::processFeature),
+        () -> SimpleFeature.create(river, riverTags, "overture", null, 9)));
+
+    var transportation = new Transportation(config);
+    var segmentTags = overture("transportation", "segment", segment());
+    cases.add(process(collectors, "transportation", profile(transportation::processFeature),
+        () -> SimpleFeature.create(road, segmentTags, "overture", null, 10)));
+
+    var buildingHandler = new Building();
+    cases.add(process(collectors, "building", profile(buildingHandler::processFeature),
+        () -> SimpleFeature.create(building, buildingTags, "overture", null, 11)));
+
+    var overtureProfile = new Overture(config, new HandlerMetrics(false, Stats.inMemory()));
+    cases.add(process(collectors, "overture_dispatch", overtureProfile,
+        () -> SimpleFeature.create(road, segmentTags, "overture", null, 12)));
+
+    // a z6 tile where motorways and rivers are split into thousands of short
+    // pieces at segment and water feature boundaries
+    var motorways = pieces("transportation", Map.of("subtype", "road", "class", "motorway"), 40, 100);
+    cases.add(new Case("transportation_postprocess_z6", 1, () -> transportation.postProcess(6, motorways).size()));
+    var rivers = pieces("water", Map.of("subtype", "river", "class", "river"), 20, 100);
+    cases.add(new Case("water_postprocess_z9", 1, () -> water.postProcess(9, rivers).size()));
+    return cases;
+  }
+
+  /**
+   * Returns a case for each example in a planetiler yaml test file, with a
+   * synthetic geometry of the example's input geometry type and its tags.
+   */
+  @SuppressWarnings("unchecked")
+  static List<Case> testCases(Path path, Profile profile, FeatureCollector.Factory collectors) throws IOException {
+    List<Case> cases = new ArrayList<>();
+    var examples = (List<Map<String, Object>>) readYaml(path).getOrDefault("examples", List.of());
+    long id = 1_000;
+    for (var example : examples) {
+      var input = (Map<String, Object>) example.get("input");
+      var tags = (Map<String, Object>) input.getOrDefault("tags", Map.of());
+      String source = (String) input.getOrDefault("source", "overture");
+      var geometry = switch (String.valueOf(input.get("geometry"))) {
+        case "point" -> GeoUtils.point(-71.4, 41.8);
+        case "polygon" -> square(-71.4, 41.8, 0.01);
+        default -> line(-71.4, 41.8, 8);
+      };
+      long featureId = id++;
+      cases.add(process(collectors, path.getFileName() + "/" + example.get("name"), profile,
+          () -> SimpleFeature.create(geometry, tags, source, null, featureId)));
+    }
+    return cases;
+  }
+
+  /** Returns budgets by case name from a yaml map of {@code name: {ns_per_op: ..., bytes_per_op: ...}}. */
+  @SuppressWarnings("unchecked")
+  static Map<String, Budget> budgets(Path path) throws IOException {
+    Map<String, Budget> result = new HashMap<>();
+    readYaml(path).forEach((name, value) -> {
+      var limits = (Map<String, Object>) value;
+      result.put(name, new Budget(limit(limits.get("ns_per_op")), limit(limits.get("bytes_per_op"))));
+    });
+    return result;
+  }
+
+  private static double limit(Object value) {
+    return value instanceof Number number ? number.doubleValue() : Double.POSITIVE_INFINITY;
+  }
+
+  /** Returns the top-level map in a yaml file, or an empty map if it doesn't exist. */
+  static Map<String, Object> readYaml(Path path) throws IOException {
+    if (!Files.exists(path)) {
+      return Map.of();
+    }
+    try (var reader = Files.newBufferedReader(path)) {
+      Map<String, Object> result = new Yaml().load(reader);
+      return result == null ? Map.of() : result;
+    }
+  }
+
+  /** Adapts a single layer handler to a profile so it can be benchmarked on its own. */
+  static Profile profile(java.util.function.BiConsumer<SourceFeature, FeatureCollector> processor) {
+    return new Profile() {
+      @Override
+      public void processFeature(SourceFeature sourceFeature, FeatureCollector features) {
+        processor.accept(sourceFeature, features);
+      }
+
+      @Override
+      public String attribution() {
+        return null;
+      }
+    };
+  }
+
+  static Map<String, Object> overture(String theme, String type, Map<String, Object> attrs) {
+    Map<String, Object> result = new LinkedHashMap<>(attrs);
+    result.put("id", "08b2a100d2cb3fff0200bc94c4a3c2d4");
+    result.put("theme", theme);
+    result.put("type", type);
+    result.put("version", 1);
+    result.put("sources", List.of(Map.of(
+        "property", "",
+        "dataset", "OpenStreetMap",
+        "record_id", "w123456789@3")));
+    return result;
+  }
+
+  static Map<String, Object> names(String primary, int languages) {
+    Map<String, Object> common = new LinkedHashMap<>();
+    for (String language : List.of("en", "es", "fr", "de", "ja", "zh").subList(0, languages)) {
+      common.put(language, primary + " (" + language + ")");
+    }
+    return Map.of("primary", primary, "common", common);
+  }
+
+  /** A road segment with a realistic mix of full-length and partial linear-referenced rules. */
+  static Map<String, Object> segment() {
+    return Map.of(
+        "subtype", "road",
+        "class", "secondary",
+        "names", Map.of(
+            "primary", "Main Street",
+            "common", Map.of("es", "Calle Principal"),
+            "rules", List.of(
+                Map.of("variant", "common", "value", "Old Main Street", "between", List.of(0d, 0.4)))),
+        "road_surface", List.of(
+            Map.of("value", "paved"),
+            Map.of("value", "gravel", "between", List.of(0.8, 1d))),
+        "road_flags", List.of(
+            Map.of("values", List.of("is_bridge"), "between", List.of(0.4, 0.6))),
+        "level_rules", List.of(
+            Map.of("value", 1, "between", List.of(0.4, 0.6))),
+        "width_rules", List.of(
+            Map.of("value", 7.5)),
+        "lanes", List.of(
+            Map.of("value", List.of(Map.of("direction", "backward"), Map.of("direction", "forward")))),
+        "speed_limits", List.of(
+            Map.of("max_speed", Map.of("value", 30, "unit", "mph")),
+            Map.of("max_speed", Map.of("value", 20, "unit", "mph"),
+                "when", Map.of("during", "Mo-Fr 07:00-09:00"),
+                "between", List.of(0.2, 0.5))),
+        "access_restrictions", List.of(
+            Map.of("access_type", "denied", "when", Map.of("heading", "backward"), "between", List.of(0d, 0.2))));
+  }
+
+  /**
+   * Returns {@code lines} lines across a tile with the same attributes, each
+   * split into {@code count} pieces that meet end-to-end.
+   */
+  static List<VectorTile.Feature> pieces(String layer, Map<String, Object> attrs, int lines, int count) {
+    List<VectorTile.Feature> result = new ArrayList<>(lines * count);
+    double step = 256d / count;
+    long id = 0;
+    for (int line = 0; line < lines; line++) {
+      double y = 256d * (line + 0.5) / lines;
+      for (int i = 0; i < count; i++) {
+        var piece = GeoUtils.JTS_FACTORY.createLineString(new Coordinate[] {
+            new Coordinate(i * step, y + (i % 2) * 0.5),
+            new Coordinate((i + 1) * step, y + ((i + 1) % 2) * 0.5)
+        });
+        result.add(new VectorTile.Feature(layer, id++, VectorTile.encodeGeometry(piece), attrs));
+      }
+    }
+    return result;
+  }
+
+  static Geometry line(double lon, double lat, int points) {
+    Coordinate[] coordinates = new Coordinate[points];
+    for (int i = 0; i < points; i++) {
+      coordinates[i] = new Coordinate(lon + i * 0.001, lat + (i % 2) * 0.0005);
+    }
+    return GeoUtils.JTS_FACTORY.createLineString(coordinates);
+  }
+
+  static Geometry square(double lon, double lat, double size) {
+    return GeoUtils.JTS_FACTORY.createPolygon(new Coordinate[] {
+        new Coordinate(lon, lat),
+        new Coordinate(lon + size, lat),
+        new Coordinate(lon + size, lat + size),
+        new Coordinate(lon, lat + size),
+        new Coordinate(lon, lat)
+    });
+  }
+}
@@ -24,23 +24,45 @@ import java.nio.file.Path;
  * - @uid: User ID that last modified the element
  * - @user: User name that last modified the element
  * 
+ * Pass --metadata=false to leave out the @version, @timestamp, @changeset,
+ * @uid and @user attributes, which shrinks the intermediate feature storage
+ * and output for large areas like the planet.
+ * 
+ * Every feature in a tile is kept at full resolution, so the densest city
+ * tiles are much bigger than normal and each tile being encoded at once needs
+ * that much memory. If a planet run runs out of memory on a handful of tiles,
+ * generate at a higher --zoom so those tiles are split 4 ways at each level.
+ * 
+ * With --area=planet the download is split into --download_chunk_size_mb
+ * chunks fetched over 8 connections; change that with --download_threads.
+ * 
  * To run:
  * - java -cp planetiler.jar OsmQaTiles.java --area="rhode island"
  * - open data/qa.pmtiles in https://pmtiles.io/#map=13.03/41.67807/-71.60054
  */
 public class OsmQaTiles implements Profile {
 
+  private final boolean metadata;
+
+  OsmQaTiles(boolean metadata) {
+    this.metadata = metadata;
+  }
+
   public static void main(String[] args) {
     Arguments arguments = Arguments.fromArgsOrConfigFile(args);
     int zoom = arguments.getInteger("zoom", "zoom level to generate tiles at", 12);
     String area = arguments.getString("area", "geofabrik area to download", "monaco");
+    boolean metadata = arguments.getBoolean("metadata", "include OSM element metadata attributes like @user", true);
     var args2 = arguments
         .withDefault("minzoom", zoom)
         .withDefault("maxzoom", zoom)
         .withDefault("tile_warning_size_mb", 100)
-        .withDefault("download", true);
+        .withDefault("download", true)
+        // the planet is fetched from a server that supports range requests, so
+        // download it in chunks over several connections at once
+        .withDefault("download_threads", "planet".equalsIgnoreCase(area) ? 8 : 1);
     Planetiler.create(args2)
-        .setProfile(new OsmQaTiles())
+        .setProfile(new OsmQaTiles(metadata))
         .addOsmSource("osm",
             Path.of("data", area + ".osm.pbf"),
             "planet".equalsIgnoreCase(area) ? "aws:latest" : ("geofabrik:" + area))
@@ -64,7 +86,7 @@ public class OsmQaTiles implements Profile {
             case OsmElement.Relation ignored -> "relation";
             default -> null;
           });
-      var info = element.info();
+      var info = metadata ? element.info() : null;
       if (info != null) {
         feature
             .setAttr("@version", info.version() == 0 ? null : info.version())
@@ -1,11 +1,29 @@
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 import com.onthegomap.planetiler.ForwardingProfile;
 import com.onthegomap.planetiler.Planetiler;
+import com.onthegomap.planetiler.VectorTile;
 import com.onthegomap.planetiler.config.Arguments;
 import com.onthegomap.planetiler.config.PlanetilerConfig;
+import com.onthegomap.planetiler.expression.Expression;
+import com.onthegomap.planetiler.geo.GeometryException;
+import com.onthegomap.planetiler.geo.TileCoord;
+import com.onthegomap.planetiler.reader.WithTags;
 import com.onthegomap.planetiler.util.Glob;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import overturelayers.Building;
+import overturelayers.HandlerMetrics;
+import overturelayers.InputManifest;
+import overturelayers.SlowMerges;
 import overturelayers.Transportation;
 import overturelayers.Water;
 
@@ -19,14 +37,72 @@ import overturelayers.Water;
  * https://docs.overturemaps.org/getting-data/
  * - Run java -cp planetiler.jar Overture.java
  * - Open data/overture.pmtiles in https://pmtiles.io/
+ * 
+ * Add --handler_metrics=true to record how much time and memory each layer
+ * handler spends in processFeature and postProcess as overture_handler_*
+ * counters in planetiler's stats, alongside its own timers and counters (use
+ * --pushgateway=... to export them to prometheus).
+ * 
+ * When iterating on one layer handler, add --types=segment (or any other
+ * overture types) to only read the input files for those types.
+ * 
+ * Add --skip_unchanged=true to do nothing when the output exists and none of
+ * the input parquet files, profile source files, command-line arguments, or
+ * resulting bounds and zoom range changed since it was built, as recorded in
+ * data/overture.pmtiles.inputs. Settings that come from a config file or
+ * environment variables are not tracked, so leave it off after changing those.
+ * This is only a way to skip no-op runs: if anything changed, including any
+ * file in a new monthly Overture release, the whole archive is rebuilt from
+ * scratch.
  */
 public class Overture extends ForwardingProfile {
 
-  Overture(PlanetilerConfig config) {
+  private static final Logger LOGGER = LoggerFactory.getLogger(Overture.class);
+  private final List<Expression> filters;
+
+  Overture(PlanetilerConfig config, HandlerMetrics metrics) {
     super(config);
-    registerHandler(new Water(config));
-    registerHandler(new Transportation(config));
-    registerHandler(new Building());
+    var water = new Water(config);
+    var transportation = new Transportation(config);
+    var building = new Building();
+    registerHandler(metrics.wrap(water));
+    registerHandler(metrics.wrap(transportation));
+    registerHandler(metrics.wrap(building));
+    filters = List.of(water.filter(), transportation.filter(), building.filter());
+  }
+
+  /**
+   * Returns false if {@code path} is inside a hive-partitioned "type=..."
+   * directory that none of the registered handlers read, so the whole file can
+   * be skipped without opening it.
+   */
+  boolean handlesPartition(Path path) {
+    String type = partitionType(path);
+    if (type == null) {
+      return true;
+    }
+    var tags = WithTags.from(Map.of("type", type));
+    return filters.stream().anyMatch(filter -> filter.evaluate(tags));
+  }
+
+  /** Returns the value from the hive-partitioned "type=..." directory {@code path} is in, or null if none. */
+  static String partitionType(Path path) {
+    for (Path part : path) {
+      String name = part.toString();
+      if (name.startsWith("type=")) {
+        return name.substring("type=".length());
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Map<String, List<VectorTile.Feature>> postProcessTileFeatures(TileCoord tileCoord,
+      Map<String, List<VectorTile.Feature>> layers) throws GeometryException {
+    var result = super.postProcessTileFeatures(tileCoord, layers);
+    // layers in this tile were just merged on this thread, log any slow ones with its coordinate
+    SlowMerges.log(tileCoord);
+    return result;
   }
 
   @Override
@@ -34,18 +110,69 @@ public class Overture extends ForwardingProfile {
     return true;
   }
 
-  public static void main(String[] args) {
+  public static void main(String[] args) throws Exception {
     var arguments = Arguments.fromArgsOrConfigFile(args);
     Path base = arguments.inputFile("base", "overture base directory", Path.of("data", "overture"));
-    Planetiler.create(arguments)
-        .setProfile(pt -> new Overture(pt.config()))
+    boolean handlerMetrics =
+        arguments.getBoolean("handler_metrics", "record time and allocations per layer handler", false);
+    boolean skipUnchanged = arguments.getBoolean("skip_unchanged",
+        "skip the build if no input files, profile sources or settings changed", false);
+    Path output = arguments.file("output", "output tile archive", Path.of("data", "overture.pmtiles"));
+    Path manifestPath = output.resolveSibling(output.getFileName() + ".inputs");
+    List<String> types = arguments.getList("types", "only read input files for these overture types", List.of());
+    var planetiler = Planetiler.create(arguments);
+    var metrics = new HandlerMetrics(handlerMetrics, planetiler.stats());
+    var profile = new Overture(planetiler.config(), metrics);
+    // skip entire theme/type partitions (ie. places, addresses) that no handler uses
+    var paths = Glob.of(base).resolve("**", "*.parquet").find().stream()
+        .filter(profile::handlesPartition)
+        .filter(path -> types.isEmpty() || types.contains(partitionType(path)))
+        .toList();
+
+    InputManifest inputs = null;
+    if (skipUnchanged) {
+      var config = planetiler.config();
+      // include the profile's own sources when run from this directory so
+      // edits to a handler trigger a rebuild
+      List<Path> files = new ArrayList<>(paths);
+      if (Files.isDirectory(Path.of("overturelayers"))) {
+        files.addAll(Glob.of(Path.of("overturelayers")).resolve("*.java").find());
+      }
+      if (Files.exists(Path.of("Overture.java"))) {
+        files.add(Path.of("Overture.java"));
+      }
+      inputs = InputManifest.of(files,
+          Map.of(
+              "bounds", config.bounds().latLon().toString(),
+              "minzoom", Integer.toString(config.minzoom()),
+              "maxzoom", Integer.toString(config.maxzoom()),
+              // everything else passed in, like --only_layers or --exclude_layers
+              "args", Arrays.stream(args)
+                  .filter(arg -> !arg.replace('-', '_').contains("skip_unchanged"))
+                  .sorted()
+                  .collect(Collectors.joining(" "))));
+      var changes = inputs.changesSince(InputManifest.read(manifestPath));
+      if (changes.isEmpty() && Files.exists(output)) {
+        LOGGER.info("Nothing changed since {} was built, skipping", output);
+        return;
+      }
+      LOGGER.info("Rebuilding {} because {} inputs changed: {}", output, changes.size(), changes);
+    }
+    // a build without --skip_unchanged, or one that fails part way, leaves an
+    // output that doesn't match any saved manifest
+    Files.deleteIfExists(manifestPath);
+    planetiler
+        .setProfile(profile)
         .addParquetSource("overture",
-            Glob.of(base).resolve("**", "*.parquet").find(),
+            paths,
             true, // hive-partitioning
             fields -> fields.get("id"), // hash the ID field to generate unique long IDs
             fields -> fields.get("type")) // extract "type={}" from the filename to get layer
-        .overwriteOutput(Path.of("data", "overture.pmtiles"))
+        .overwriteOutput(output)
         .run();
+    if (inputs != null) {
+      inputs.write(manifestPath);
+    }
   }
 
   @Override
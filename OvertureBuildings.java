@@ -14,6 +14,12 @@ import com.onthegomap.planetiler.reader.SourceFeature;
  * To run:
  * - download just overture building data in a bounding box to
  * data/buildings.parquet (https://docs.overturemaps.org/getting-data/)
+ * - optionally, only download the columns this profile reads since the
+ * parquet reader decodes every column that is present (keep bbox, the reader
+ * uses it to skip rows outside of --bounds), for example with duckdb:
+ * COPY (SELECT id, geometry, bbox, subtype, class, level, height, num_floors,
+ * min_height, min_floor FROM read_parquet('.../type=building/*')
+ * WHERE ...) TO 'data/buildings.parquet'
  * - Run java -cp planetiler.jar OvertureBuildings.java
  * - Open data/overture-buildings.pmtiles in https://pmtiles.io/
  */
@@ -5,6 +5,7 @@ import com.onthegomap.planetiler.FeatureCollector;
 import com.onthegomap.planetiler.Planetiler;
 import com.onthegomap.planetiler.Profile;
 import com.onthegomap.planetiler.config.Arguments;
+import com.onthegomap.planetiler.config.PlanetilerConfig;
 import com.onthegomap.planetiler.reader.SourceFeature;
 
 /**
@@ -14,14 +15,31 @@ import com.onthegomap.planetiler.reader.SourceFeature;
  * To run:
  * - download just overture land cover data in a bounding box to
  * data/land_cover.parquet (https://docs.overturemaps.org/getting-data/)
+ * - optionally, only download the columns this profile reads since the
+ * parquet reader decodes every column that is present (keep bbox, the reader
+ * uses it to skip rows outside of --bounds), for example with duckdb:
+ * COPY (SELECT id, geometry, bbox, subtype, cartography
+ * FROM read_parquet('.../type=land_cover/*') WHERE ...)
+ * TO 'data/land_cover.parquet'
  * - Run java -cp planetiler.jar OvertureLandcover.java
  * - Open data/overture-land_cover.pmtiles in https://pmtiles.io/
+ * 
+ * Overture publishes a separate, already-generalized polygon for each band of
+ * zooms in cartography.min_zoom/max_zoom, and planetiler only slices and
+ * simplifies a polygon at the zooms it is visible at, so each band is only
+ * ever rendered at its own zooms.
  */
 public class OvertureLandcover implements Profile {
+  private final PlanetilerConfig config;
+
+  OvertureLandcover(PlanetilerConfig config) {
+    this.config = config;
+  }
+
   public static void main(String[] args) {
     var arguments = Arguments.fromArgsOrConfigFile(args);
     Planetiler.create(arguments)
-        .setProfile(new OvertureLandcover())
+        .setProfile(pt -> new OvertureLandcover(pt.config()))
         .addParquetSource("overture", List.of(Path.of("data", "land_cover.parquet")))
         .overwriteOutput(Path.of("data", "overture-land_cover.pmtiles"))
         .run();
@@ -30,8 +48,19 @@ public class OvertureLandcover implements Profile {
   @Override
   public void processFeature(SourceFeature source, FeatureCollector features) {
     var cartography = source.getStruct("cartography");
-    var minZoom = cartography.get("min_zoom").asInt();
-    var maxZoom = cartography.get("max_zoom").asInt();
+    Integer minZoom = cartography.get("min_zoom").asInt();
+    Integer maxZoom = cartography.get("max_zoom").asInt();
+    if (minZoom == null) {
+      minZoom = config.minzoom();
+    }
+    if (maxZoom == null) {
+      maxZoom = config.maxzoom();
+    }
+    // drop bands outside of the zooms being generated before anything
+    // touches their (often enormous) geometry
+    if (minZoom > config.maxzoom() || maxZoom < config.minzoom()) {
+      return;
+    }
 
     features.polygon("land_cover")
         .setMinZoom(minZoom)
@@ -1,9 +1,20 @@
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.locationtech.jts.geom.Point;
 
 import com.onthegomap.planetiler.FeatureCollector;
 import com.onthegomap.planetiler.Planetiler;
 import com.onthegomap.planetiler.Profile;
 import com.onthegomap.planetiler.config.Arguments;
+import com.onthegomap.planetiler.geo.GeoUtils;
+import com.onthegomap.planetiler.geo.GeometryException;
+import com.onthegomap.planetiler.reader.SimpleFeature;
 import com.onthegomap.planetiler.reader.SourceFeature;
 import com.onthegomap.planetiler.util.ZoomFunction;
 
@@ -17,6 +28,16 @@ import com.onthegomap.planetiler.util.ZoomFunction;
  */
 public class Toilets implements Profile {
 
+  // at z12 and below, only show 4 toilets in each 32x32px square of a tile
+  private static final int LABEL_GRID_MAXZOOM = 12;
+  private static final int LABEL_GRID_PIXELS = 32;
+  private static final int LABEL_GRID_LIMIT = 4;
+  // number of label grid squares across the whole world at LABEL_GRID_MAXZOOM
+  private static final int GRID_SIZE = (256 << LABEL_GRID_MAXZOOM) / LABEL_GRID_PIXELS;
+
+  /** Toilets that can still show up at z12, keyed by their z12 label grid square. */
+  private final Map<Long, GridSquare> squares = new ConcurrentHashMap<>();
+
   /*
    * Main entrypoint for the example program
    */
@@ -35,21 +56,113 @@ public class Toilets implements Profile {
   @Override
   public void processFeature(SourceFeature sourceFeature, FeatureCollector features) {
     if (sourceFeature.isPoint() && sourceFeature.hasTag("amenity", "toilets")) {
+      // show every toilet above the label grid zoom levels
       features.point("toilets")
-          .setZoomRange(0, 14)
-          // to limit toilets displayed at lower zoom levels:
-          // divide each 256x256 px tile into 32x32 px squares
-          // and in each square only include
-          // the toilets with the lowest sort key within that square
-          .setPointLabelGridSizeAndLimit(
-              12, // only limit at z12 and below
-              32, // break the tile up into 32x32 px squares
-              4 // any only keep the 4 nodes with lowest sort-key in each 32px square
-          )
-          // and also whenever you set a label grid size limit, make sure you increase the
-          // buffer size so no
-          // label grid squares will be the consistent between adjacent tiles
-          .setBufferPixelOverrides(ZoomFunction.maxZoom(12, 32));
+          .setZoomRange(LABEL_GRID_MAXZOOM + 1, 14);
+
+      // at lower zooms most toilets get thrown away by the label grid when tiles
+      // are encoded, so instead of emitting all of them now just remember the
+      // ones that can still be kept in each z12 square, and emit those in finish()
+      try {
+        Point point = (Point) sourceFeature.latLonGeometry();
+        var candidate = new Candidate(sourceFeature.id(), point.getX(), point.getY());
+        long x = gridSquare(GeoUtils.getWorldX(point.getX()));
+        long y = gridSquare(GeoUtils.getWorldY(point.getY()));
+        squares.computeIfAbsent(x * GRID_SIZE + y, key -> new GridSquare()).add(candidate);
+      } catch (GeometryException e) {
+        e.log("Error getting toilet location");
+      }
+    }
+  }
+
+  @Override
+  public void finish(String sourceName, FeatureCollector.Factory featureCollectors,
+      Consumer<FeatureCollector.Feature> emit) {
+    // label grid squares nest, so the toilets kept in a square at one zoom are
+    // the best of the ones kept in its 4 child squares at the zoom above
+    Map<Long, GridSquare> level = squares;
+    int size = GRID_SIZE;
+    for (int zoom = LABEL_GRID_MAXZOOM - 1; zoom >= 0; zoom--) {
+      Map<Long, GridSquare> parents = new HashMap<>();
+      for (var entry : level.entrySet()) {
+        long x = entry.getKey() / size, y = entry.getKey() % size;
+        var parent = parents.computeIfAbsent((x / 2) * (size / 2) + (y / 2), key -> new GridSquare());
+        for (var candidate : entry.getValue().candidates) {
+          parent.add(candidate);
+        }
+      }
+      for (var square : parents.values()) {
+        for (var candidate : square.candidates) {
+          candidate.minzoom = zoom;
+        }
+      }
+      level = parents;
+      size /= 2;
+    }
+
+    for (var square : squares.values()) {
+      for (var candidate : square.candidates) {
+        var point = GeoUtils.point(candidate.lon, candidate.lat);
+        var features = featureCollectors.get(SimpleFeature.create(point, Map.of(), sourceName, null, candidate.id));
+        features.point("toilets")
+            .setZoomRange(candidate.minzoom, LABEL_GRID_MAXZOOM)
+            // to limit toilets displayed at lower zoom levels:
+            // divide each 256x256 px tile into 32x32 px squares
+            // and in each square only include
+            // the toilets with the lowest sort key within that square
+            .setPointLabelGridSizeAndLimit(
+                LABEL_GRID_MAXZOOM, // only limit at z12 and below
+                LABEL_GRID_PIXELS, // break the tile up into 32x32 px squares
+                LABEL_GRID_LIMIT // any only keep the 4 nodes with lowest sort-key in each 32px square
+            )
+            // and also whenever you set a label grid size limit, make sure you increase the
+            // buffer size so no
+            // label grid squares will be the consistent between adjacent tiles
+            .setBufferPixelOverrides(ZoomFunction.maxZoom(LABEL_GRID_MAXZOOM, LABEL_GRID_PIXELS));
+        for (var feature : features) {
+          emit.accept(feature);
+        }
+      }
+    }
+    squares.clear();
+  }
+
+  private static long gridSquare(double worldCoord) {
+    return Math.clamp((long) (worldCoord * GRID_SIZE), 0, GRID_SIZE - 1);
+  }
+
+  /** A toilet that may show up at low zooms, and the lowest zoom it shows up at. */
+  private static class Candidate {
+    final long id;
+    final double lon, lat;
+    int minzoom = LABEL_GRID_MAXZOOM;
+
+    Candidate(long id, double lon, double lat) {
+      this.id = id;
+      this.lon = lon;
+      this.lat = lat;
+    }
+  }
+
+  /**
+   * The toilets kept in one label grid square. None of them have a sort key so
+   * ties are broken by keeping the lowest IDs, which keeps the output stable
+   * between runs.
+   */
+  private static class GridSquare {
+    final List<Candidate> candidates = new ArrayList<>(LABEL_GRID_LIMIT + 1);
+
+    synchronized void add(Candidate candidate) {
+      int index = 0;
+      while (index < candidates.size() && candidates.get(index).id < candidate.id) {
+        index++;
+      }
+      if (index < LABEL_GRID_LIMIT) {
+        candidates.add(index, candidate);
+        if (candidates.size() > LABEL_GRID_LIMIT) {
+          candidates.removeLast();
+        }
+      }
     }
   }
 
@@ -1,18 +1,25 @@
 package overturelayers;
 
+import com.onthegomap.planetiler.FeatureCollector;
 import com.onthegomap.planetiler.ForwardingProfile.HandlerForLayer;
+import com.onthegomap.planetiler.VectorTile.Feature;
 import com.onthegomap.planetiler.expression.Expression;
+import com.onthegomap.planetiler.geo.GeometryException;
 import com.onthegomap.planetiler.reader.SourceFeature;
 import com.onthegomap.planetiler.reader.Struct;
 
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.onthegomap.planetiler.ForwardingProfile.FeatureProcessor;
 
 /** Base layer that all overture layer handlers extend. */
 abstract class BaseLayer implements HandlerForLayer, FeatureProcessor {
+  // there are only a few hundred languages in practice, cap it in case of bad input
+  private static final int MAX_NAME_KEYS = 1_000;
+  private static final Map<Object, String> NAME_KEYS = new ConcurrentHashMap<>();
+
   final String LAYER;
   private final Expression filter;
 
@@ -31,19 +38,55 @@ abstract class BaseLayer implements HandlerForLayer, FeatureProcessor {
     return filter;
   }
 
-  static Map<String, Object> names(SourceFeature feature) {
-    return names(feature.getStruct("names"));
+  /** A merge step that runs on all the features in a layer in a tile. */
+  interface Merge {
+    List<Feature> apply(List<Feature> items) throws GeometryException;
+  }
+
+  /**
+   * Runs {@code merge} on the features in a tile and records the feature counts
+   * and time taken if it is slow, so {@link SlowMerges} can log dense tiles by
+   * their coordinate.
+   */
+  List<Feature> timedMerge(List<Feature> items, Merge merge) throws GeometryException {
+    long start = System.nanoTime();
+    int before = items.size();
+    var result = merge.apply(items);
+    long nanos = System.nanoTime() - start;
+    if (nanos > SlowMerges.SLOW_POST_PROCESS_NANOS) {
+      SlowMerges.record(LAYER, before, result.size(), nanos);
+    }
+    return result;
   }
 
-  static Map<String, Object> names(Struct names) {
+  /**
+   * Sets name and name:xx attributes from the overture names struct directly on
+   * {@code feature} visible at {@code minzoom} and above, without building an
+   * intermediate map.
+   */
+  static void putNamesWithMinzoom(FeatureCollector.Feature feature, SourceFeature source, int minzoom) {
+    Struct names = source.getStruct("names");
     if (names.isNull()) {
-      return Map.of();
+      return;
     }
-    Map<String, Object> result = new LinkedHashMap<>();
-    result.put("name", names.get("primary").asString());
+    feature.setAttrWithMinzoom("name", names.get("primary").asString(), minzoom);
     for (var entry : names.get("common").asMap().entrySet()) {
-      result.put("name:" + entry.getKey(), entry.getValue().asString());
+      feature.setAttrWithMinzoom(nameKey(entry.getKey()), entry.getValue().asString(), minzoom);
     }
-    return result;
+  }
+
+  /** Returns the "name:xx" attribute key for a language, reusing the same string for repeated languages. */
+  static String nameKey(Object language) {
+    if (language == null) {
+      return "name";
+    }
+    String key = NAME_KEYS.get(language);
+    if (key == null) {
+      key = "name:" + language;
+      if (NAME_KEYS.size() < MAX_NAME_KEYS) {
+        NAME_KEYS.putIfAbsent(language, key);
+      }
+    }
+    return key;
   }
 }
@@ -27,9 +27,12 @@ public class Building extends BaseLayer implements LayerPostProcesser {
   @Override
   public void processFeature(SourceFeature sourceFeature, FeatureCollector features) {
     boolean isPart = sourceFeature.hasTag("type", "building_part");
-    features.polygon(LAYER)
+    double height = sourceFeature.getTag("height") instanceof Number number ? number.doubleValue() : 0;
+    var feature = features.polygon(LAYER)
         .setMinZoom(isPart ? 14 : 13)
         .setMinPixelSize(2)
+        .setSortKey((int) (height * 10))
+        .setAttr("parts", isPart ? "is" : sourceFeature.getBoolean("has_parts") ? "has" : null)
         .inheritAttrsFromSourceWithMinzoom(14,
             "subtype",
             "class",
@@ -45,15 +48,13 @@ public class Building extends BaseLayer implements LayerPostProcesser {
             "roof_direction",
             "roof_orientation",
             "roof_color",
-            "eave_height")
-        .setSortKey((int) (sourceFeature.getStruct("height").orElse(0).asDouble() * 10))
-        .setAttr("parts", isPart ? "is" : sourceFeature.getBoolean("has_parts") ? "has" : null)
-        // TODO names here or as a point?
-        .putAttrsWithMinzoom(names(sourceFeature), 14);
+            "eave_height");
+    // TODO names here or as a point?
+    putNamesWithMinzoom(feature, sourceFeature, 14);
   }
 
   @Override
   public List<Feature> postProcess(int zoom, List<Feature> items) throws GeometryException {
-    return FeatureMerge.mergeMultiPolygon(items);
+    return timedMerge(items, FeatureMerge::mergeMultiPolygon);
   }
 }
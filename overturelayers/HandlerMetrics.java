@@ -0,0 +1,131 @@
+package overturelayers;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.onthegomap.planetiler.FeatureCollector;
+import com.onthegomap.planetiler.ForwardingProfile.FeatureProcessor;
+import com.onthegomap.planetiler.ForwardingProfile.Handler;
+import com.onthegomap.planetiler.ForwardingProfile.HandlerForLayer;
+import com.onthegomap.planetiler.ForwardingProfile.LayerPostProcesser;
+import com.onthegomap.planetiler.VectorTile.Feature;
+import com.onthegomap.planetiler.expression.Expression;
+import com.onthegomap.planetiler.geo.GeometryException;
+import com.onthegomap.planetiler.reader.SourceFeature;
+import com.onthegomap.planetiler.stats.Counter;
+import com.onthegomap.planetiler.stats.Stats;
+
+/**
+ * Opt-in instrumentation for overture layer handlers that records call counts,
+ * time, features in/out and bytes allocated for each handler's processFeature,
+ * and for postProcess on each layer at each zoom.
+ *
+ * The counters are registered on planetiler's {@link Stats}, so they show up
+ * with the rest of the run's stats and in its prometheus output, for example
+ * {@code overture_handler_water_postprocess_z8_nanos}.
+ *
+ * Enable with --handler_metrics=true when running Overture.java.
+ */
+public class HandlerMetrics {
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  private final boolean enabled;
+  private final Stats stats;
+  private final Map<Key, Counters> counters = new ConcurrentHashMap<>();
+
+  public HandlerMetrics(boolean enabled, Stats stats) {
+    this.enabled = enabled;
+    this.stats = stats;
+  }
+
+  /** What was measured: {@code zoom} is -1 for processFeature which isn't tied to a zoom. */
+  private record Key(String handler, String phase, int zoom) {
+    String prefix() {
+      return "overture_handler_" + handler + "_" + phase + (zoom < 0 ? "" : "_z" + zoom) + "_";
+    }
+  }
+
+  private record Counters(
+      Counter.MultiThreadCounter calls,
+      Counter.MultiThreadCounter nanos,
+      Counter.MultiThreadCounter featuresIn,
+      Counter.MultiThreadCounter featuresOut,
+      Counter.MultiThreadCounter bytes
+  ) {}
+
+  /** Returns {@code handler} wrapped to record metrics, or unchanged if metrics are disabled. */
+  public <T extends HandlerForLayer & FeatureProcessor & LayerPostProcesser> Handler wrap(T handler) {
+    return enabled ? new Instrumented<>(handler) : handler;
+  }
+
+  private void record(Key key, long startNanos, long startBytes, int featuresIn, int featuresOut) {
+    long nanos = System.nanoTime() - startNanos;
+    long bytes = THREADS.getCurrentThreadAllocatedBytes() - startBytes;
+    var counter = counters.computeIfAbsent(key, k -> new Counters(
+        stats.longCounter(k.prefix() + "calls"),
+        stats.nanoCounter(k.prefix() + "nanos"),
+        stats.longCounter(k.prefix() + "features_in"),
+        stats.longCounter(k.prefix() + "features_out"),
+        stats.longCounter(k.prefix() + "allocated_bytes")));
+    counter.calls.counterForThread().inc();
+    counter.nanos.counterForThread().incBy(nanos);
+    counter.featuresIn.counterForThread().incBy(featuresIn);
+    counter.featuresOut.counterForThread().incBy(featuresOut);
+    counter.bytes.counterForThread().incBy(bytes);
+  }
+
+  private static int count(FeatureCollector features) {
+    int count = 0;
+    for (var ignored : features) {
+      count++;
+    }
+    return count;
+  }
+
+  private class Instrumented<T extends HandlerForLayer & FeatureProcessor & LayerPostProcesser>
+      implements HandlerForLayer, FeatureProcessor, LayerPostProcesser {
+    private final T delegate;
+    private final Key processKey;
+    private final Key[] postProcessKeys = new Key[32];
+
+    Instrumented(T delegate) {
+      this.delegate = delegate;
+      this.processKey = new Key(delegate.name(), "process", -1);
+      for (int zoom = 0; zoom < postProcessKeys.length; zoom++) {
+        postProcessKeys[zoom] = new Key(delegate.name(), "postprocess", zoom);
+      }
+    }
+
+    @Override
+    public String name() {
+      return delegate.name();
+    }
+
+    @Override
+    public Expression filter() {
+      return delegate.filter();
+    }
+
+    @Override
+    public void processFeature(SourceFeature sourceFeature, FeatureCollector features) {
+      int before = count(features);
+      long startBytes = THREADS.getCurrentThreadAllocatedBytes();
+      long start = System.nanoTime();
+      delegate.processFeature(sourceFeature, features);
+      record(processKey, start, startBytes, 1, count(features) - before);
+    }
+
+    @Override
+    public List<Feature> postProcess(int zoom, List<Feature> items) throws GeometryException {
+      int before = items.size();
+      long startBytes = THREADS.getCurrentThreadAllocatedBytes();
+      long start = System.nanoTime();
+      var result = delegate.postProcess(zoom, items);
+      record(postProcessKeys[zoom], start, startBytes, before, result == null ? before : result.size());
+      return result;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package overturelayers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Fingerprints (size and last modified time) of the input files and profile
+ * sources used to build an archive, plus the settings it was built with, saved
+ * alongside it so the next run can skip the rebuild entirely when none of them
+ * changed.
+ */
+public record InputManifest(Map<String, String> fingerprints) {
+
+  /**
+   * Returns the fingerprints of {@code paths} as they are on disk now, along
+   * with each of {@code settings} stored under "--" + its name.
+   */
+  public static InputManifest of(List<Path> paths, Map<String, String> settings) throws IOException {
+    Map<String, String> fingerprints = new TreeMap<>();
+    for (Path path : paths) {
+      fingerprints.put(path.toString(), Files.size(path) + ":" + Files.getLastModifiedTime(path).toMillis());
+    }
+    settings.forEach((name, value) -> fingerprints.put("--" + name, value));
+    return new InputManifest(fingerprints);
+  }
+
+  /** Returns the manifest saved at {@code path}, or an empty one if there isn't one. */
+  public static InputManifest read(Path path) throws IOException {
+    Map<String, String> fingerprints = new TreeMap<>();
+    if (Files.exists(path)) {
+      for (String line : Files.readAllLines(path)) {
+        int tab = line.indexOf('\t');
+        if (tab > 0) {
+          fingerprints.put(line.substring(tab + 1), line.substring(0, tab));
+        }
+      }
+    }
+    return new InputManifest(fingerprints);
+  }
+
+  public void write(Path path) throws IOException {
+    var result = new StringBuilder();
+    fingerprints.forEach((file, fingerprint) -> result.append(fingerprint).append('\t').append(file).append('\n'));
+    Files.writeString(path, result);
+  }
+
+  /** Returns a description of each file that was added, changed, or removed since {@code previous}. */
+  public List<String> changesSince(InputManifest previous) {
+    List<String> result = new ArrayList<>();
+    fingerprints.forEach((file, fingerprint) -> {
+      String old = previous.fingerprints.get(file);
+      if (old == null) {
+        result.add("added " + file);
+      } else if (!old.equals(fingerprint)) {
+        result.add("changed " + file);
+      }
+    });
+    for (String file : previous.fingerprints.keySet()) {
+      if (!fingerprints.containsKey(file)) {
+        result.add("removed " + file);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,40 @@
+package overturelayers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.onthegomap.planetiler.geo.TileCoord;
+
+/**
+ * Collects layer merges that were slow while a tile was being post-processed,
+ * so they can be logged along with the tile coordinate once it is known.
+ *
+ * Layer post-processing only gets the zoom, but planetiler post-processes all
+ * the layers in a tile and then the tile itself on the same thread, so call
+ * {@link #log(TileCoord)} from the profile's postProcessTileFeatures.
+ */
+public final class SlowMerges {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SlowMerges.class);
+  // log any tile that takes longer than this to postprocess one layer
+  static final long SLOW_POST_PROCESS_NANOS = 1_000_000_000L;
+  private static final ThreadLocal<List<String>> PENDING = ThreadLocal.withInitial(ArrayList::new);
+
+  private SlowMerges() {}
+
+  static void record(String layer, int before, int after, long nanos) {
+    PENDING.get().add(String.format("%s merged %d features into %d in %dms", layer, before, after,
+        nanos / 1_000_000));
+  }
+
+  /** Logs the slow merges recorded on this thread since the last call as being in {@code tileCoord}. */
+  public static void log(TileCoord tileCoord) {
+    var pending = PENDING.get();
+    if (!pending.isEmpty()) {
+      LOGGER.warn("Slow postprocess in tile {}: {}", tileCoord, String.join(", ", pending));
+      pending.clear();
+    }
+  }
+}
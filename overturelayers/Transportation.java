@@ -1,5 +1,7 @@
 package overturelayers;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.google.common.collect.Range;
@@ -58,106 +60,223 @@ public class Transportation extends BaseLayer implements LayerPostProcesser {
         .setMinPixelSize(0)
         .inheritAttrsFromSource("subtype", "class");
 
+    // collect every linearly-referenced rule first, then emit each distinct
+    // sub-range of the segment once with all of the zoom-gated attributes that
+    // apply to it
+    List<Rule> rules = new ArrayList<>();
+
     var names = sourceFeature.getStruct("names");
     if (!names.isNull()) {
       String primary = names.get("primary").asString();
       double minSize = 10;
       feature.setAttrWithMinSize("name", primary, minSize);
       for (var variant : names.get("common").asMap().entrySet()) {
-        feature.setAttrWithMinSize("name:" + variant.getKey(),
+        feature.setAttrWithMinSize(nameKey(variant.getKey()),
             variant.getValue().rawValue(), minSize);
       }
       for (var rule : names.get("rules").asList()) {
-        var partial = feature.linearRange(range(rule));
-        var language = rule.get("language").asString();
-        String key = language == null ? "name" : ("name:" + language);
-        partial.setAttrWithMinSize(key, rule.get("value").asString(), minSize);
+        String key = nameKey(rule.get("language").asString());
+        rules.add(new NameWithMinSize(start(rule), end(rule), key, rule.get("value").asString(), minSize));
       }
     }
 
     for (var surface : sourceFeature.getStruct("road_surface").asList()) {
-      feature.linearRange(range(surface)).setAttrWithMinzoom("surface", surface.get("value").asString(), 12);
+      rules.add(new AttrWithMinzoom(start(surface), end(surface), "surface", surface.get("value").asString(), 12));
     }
 
     for (var flags : sourceFeature.getStruct("road_flags").asList()) {
-      var range = feature.linearRange(range(flags));
+      double start = start(flags), end = end(flags);
       for (var value : flags.get("values").asList()) {
         var str = value.asString();
-        range.setAttrWithMinSize(str, true, 4, 4, 12);
+        rules.add(new AttrWithMinSize(start, end, str, true, 4, 4, 12));
         if ("is_link".equals(str)) {
-          range.setMinZoom(Math.max(minzoom, 9));
+          rules.add(new MinZoom(start, end, Math.max(minzoom, 9)));
         }
       }
     }
 
-    for (var level : sourceFeature.getStruct("level_rules").asList()) {
-      feature.linearRange(range(level)).setAttrWithMinSize("level", level.get("value").asInt(), 4, 9, 12);
-    }
-
     for (var width : sourceFeature.getStruct("width_rules").asList()) {
-      feature.linearRange(range(width)).setAttrWithMinzoom("width", width.get("value").asDouble(), 12);
+      rules.add(new AttrWithMinzoom(start(width), end(width), "width", width.get("value").asDouble(), 12));
     }
 
     for (var lanes : sourceFeature.getStruct("lanes").asList()) {
       var value = lanes.get("value").asJson();
       if (!"null".equals(value)) {
-        feature.linearRange(range(lanes)).setAttrWithMinzoom("lanes", value, 12);
+        rules.add(new AttrWithMinzoom(start(lanes), end(lanes), "lanes", value, 12));
       }
     }
 
+    // level shows up from z9 on long enough sub-ranges and always from z12
     for (var level : sourceFeature.getStruct("level_rules").asList()) {
       var value = level.get("value").asInt();
       if (value != null) {
-        feature.linearRange(range(level)).setAttrWithMinzoom("level", value, 12);
+        rules.add(new AttrWithMinSize(start(level), end(level), "level", value, 4, 9, 12));
       }
     }
 
     for (var limit : sourceFeature.getStruct("speed_limits").asList()) {
-      var range = feature.linearRange(range(limit));
+      double start = start(limit), end = end(limit);
       var min = limit.get("min_speed");
       var max = limit.get("max_speed");
       var when = limit.get("when");
       var whenString = when.isNull() ? null : when.asJson();
       if (!min.isNull()) {
-        range.setAttrWithMinzoom("min_speed", min.get("value").asString() + min.get("unit").asString(), 12);
-        range.setAttrWithMinzoom("min_speed_when", whenString, 12);
+        rules.add(new AttrWithMinzoom(start, end, "min_speed",
+            min.get("value").asString() + min.get("unit").asString(), 12));
+        rules.add(new AttrWithMinzoom(start, end, "min_speed_when", whenString, 12));
       }
       if (!max.isNull()) {
-        range.setAttrWithMinzoom("max_speed", max.get("value").asString() + max.get("unit").asString(), 12);
-        range.setAttrWithMinzoom("max_speed_when", whenString, 12);
+        rules.add(new AttrWithMinzoom(start, end, "max_speed",
+            max.get("value").asString() + max.get("unit").asString(), 12));
+        rules.add(new AttrWithMinzoom(start, end, "max_speed_when", whenString, 12));
       }
     }
 
     for (var access : sourceFeature.getStruct("access_restrictions").asList()) {
-      var range = feature.linearRange(range(access));
       var type = access.get("access_type");
       var when = access.get("when");
       var whenString = when.isNull() ? null : when.asJson();
       if (!type.isNull()) {
-        range.setAttrWithMinzoom("access", type.asString(), 12);
-        range.setAttrWithMinzoom("access_when", whenString, 12);
+        double start = start(access), end = end(access);
+        rules.add(new AttrWithMinzoom(start, end, "access", type.asString(), 12));
+        rules.add(new AttrWithMinzoom(start, end, "access_when", whenString, 12));
+      }
+    }
+
+    addLinearRanges(feature, rules);
+  }
+
+  /** An attribute or setting that applies to the part of a segment from {@code start} to {@code end}. */
+  private sealed interface Rule {
+    double start();
+
+    double end();
+  }
+
+  /**
+   * A rule that goes on its own linear range, since attributes with a min size
+   * are only shown where the range they are set on is long enough.
+   */
+  private sealed interface OwnRangeRule extends Rule {}
+
+  private record NameWithMinSize(double start, double end, String key, Object value, double minPixelSize)
+      implements OwnRangeRule {}
+
+  private record AttrWithMinSize(double start, double end, String key, Object value, double minPixelSize,
+      int minZoomIfBigEnough, int minZoomToShowAlways) implements OwnRangeRule {}
+
+  private record MinZoom(double start, double end, int minzoom) implements OwnRangeRule {}
+
+  private record AttrWithMinzoom(double start, double end, String key, Object value, int minzoom) implements Rule {}
+
+  /**
+   * Emits size-gated rules on their own range, with consecutive ones from the
+   * same source entry sharing one. Then splits the segment at every other
+   * rule's start and end point and emits a single linear range for each
+   * sub-range that has rules, with rules applied in the order they were added
+   * so later ones take precedence.
+   */
+  private static void addLinearRanges(FeatureCollector.Feature feature, List<Rule> rules) {
+    List<AttrWithMinzoom> byZoom = new ArrayList<>();
+    for (int i = 0; i < rules.size();) {
+      if (rules.get(i) instanceof AttrWithMinzoom rule) {
+        byZoom.add(rule);
+        i++;
+        continue;
+      }
+      var first = (OwnRangeRule) rules.get(i);
+      var partial = feature.linearRange(range(first.start(), first.end()));
+      while (i < rules.size() && rules.get(i) instanceof OwnRangeRule rule &&
+          rule.start() == first.start() && rule.end() == first.end()) {
+        switch (rule) {
+          case NameWithMinSize r -> partial.setAttrWithMinSize(r.key(), r.value(), r.minPixelSize());
+          case AttrWithMinSize r -> partial.setAttrWithMinSize(r.key(), r.value(), r.minPixelSize(),
+              r.minZoomIfBigEnough(), r.minZoomToShowAlways());
+          case MinZoom r -> partial.setMinZoom(r.minzoom());
+        }
+        i++;
+      }
+    }
+    if (byZoom.isEmpty()) {
+      return;
+    }
+    double[] breaks = new double[byZoom.size() * 2];
+    int n = 0;
+    for (var rule : byZoom) {
+      breaks[n++] = rule.start();
+      breaks[n++] = rule.end();
+    }
+    Arrays.sort(breaks);
+    int unique = 1;
+    for (int i = 1; i < n; i++) {
+      if (breaks[i] != breaks[unique - 1]) {
+        breaks[unique++] = breaks[i];
+      }
+    }
+    for (int i = 0; i < unique - 1; i++) {
+      double start = breaks[i], end = breaks[i + 1];
+      if (!anyCovers(byZoom, start, end)) {
+        continue;
+      }
+      var partial = feature.linearRange(range(start, end));
+      for (var rule : byZoom) {
+        if (rule.start() <= start && rule.end() >= end) {
+          partial.setAttrWithMinzoom(rule.key(), rule.value(), rule.minzoom());
+        }
       }
     }
   }
 
-  Range<Double> FULL_RANGE = Range.closedOpen(0d, 1d);
+  private static boolean anyCovers(List<? extends Rule> rules, double start, double end) {
+    for (var rule : rules) {
+      if (rule.start() <= start && rule.end() >= end) {
+        return true;
+      }
+    }
+    return false;
+  }
 
-  Range<Double> range(Struct struct) {
-    Struct between = struct.get("between");
-    if (between.isNull()) {
+  private static final Range<Double> FULL_RANGE = Range.closedOpen(0d, 1d);
+  // most segments reuse a small set of breakpoints, so keep recently used
+  // ranges in a fixed-size direct-mapped cache instead of allocating new ones
+  private static final int RANGE_CACHE_SIZE = 4096;
+  @SuppressWarnings("unchecked")
+  private static final Range<Double>[] RANGE_CACHE = new Range[RANGE_CACHE_SIZE];
+
+  /** Returns a {@code [start, end)} range, reusing a cached instance when possible. */
+  static Range<Double> range(double start, double end) {
+    if (start == 0 && end == 1) {
       return FULL_RANGE;
     }
-    Double start = between.get(0).asDouble();
-    Double end = between.get(1).asDouble();
-    return Range.closedOpen(start == null ? 0 : start, end == null ? 1 : end);
+    long hash = Double.doubleToLongBits(start) * 31 + Double.doubleToLongBits(end);
+    int index = Long.hashCode(hash ^ (hash >>> 29)) & (RANGE_CACHE_SIZE - 1);
+    // ranges are immutable so racing writes from other threads just overwrite each other
+    var cached = RANGE_CACHE[index];
+    if (cached != null && cached.lowerEndpoint() == start && cached.upperEndpoint() == end) {
+      return cached;
+    }
+    var range = Range.closedOpen(start, end);
+    RANGE_CACHE[index] = range;
+    return range;
+  }
+
+  private static double start(Struct rule) {
+    Struct between = rule.get("between");
+    Double start = between.isNull() ? null : between.get(0).asDouble();
+    return start == null ? 0 : start;
+  }
+
+  private static double end(Struct rule) {
+    Struct between = rule.get("between");
+    Double end = between.isNull() ? null : between.get(1).asDouble();
+    return end == null ? 1 : end;
   }
 
   @Override
   public List<Feature> postProcess(int zoom, List<Feature> items) throws GeometryException {
     double minSize = config.minFeatureSize(zoom);
     double tolerance = config.tolerance(zoom);
-    items = FeatureMerge.mergeLineStrings(items, minSize, tolerance, 4);
-    return items;
+    return timedMerge(items, features -> FeatureMerge.mergeLineStrings(features, minSize, tolerance, 4));
   }
 
 }
@@ -55,7 +55,7 @@ public class Water extends BaseLayer implements LayerPostProcesser {
             "level");
 
     if (sourceFeature.isPoint() || sourceFeature.canBeLine()) {
-      feature.putAttrsWithMinzoom(names(sourceFeature), minZoomForDetails);
+      putNamesWithMinzoom(feature, sourceFeature, minZoomForDetails);
     }
   }
 
@@ -63,8 +63,9 @@ public class Water extends BaseLayer implements LayerPostProcesser {
   public List<Feature> postProcess(int zoom, List<Feature> items) throws GeometryException {
     double minSize = zoom < 13 ? 8 : config.minFeatureSize(zoom);
     double tolerance = config.tolerance(zoom);
-    items = FeatureMerge.mergeOverlappingPolygons(items, minSize);
-    items = FeatureMerge.mergeLineStrings(items, minSize, tolerance, 4);
-    return items;
+    return timedMerge(items, features -> {
+      features = FeatureMerge.mergeOverlappingPolygons(features, minSize);
+      return FeatureMerge.mergeLineStrings(features, minSize, tolerance, 4);
+    });
   }
 }